@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides whether a calculated result is worth caching, based on how long it took to calculate
+ * and how often its parameter has been seen.
+ * <p/>
+ * Frequencies are estimated TinyLFU-style: a Bloom filter doorkeeper absorbs parameters seen
+ * only once, and repeats are counted in a count-min sketch of 4-bit counters packed into longs.
+ * After ten samples per expected parameter all counters are halved and the doorkeeper is cleared,
+ * so old popularity fades away. The doorkeeper is sized for a full sample period, so parameters
+ * repeating within it are counted even when there are more of them than expected.
+ * <p/>
+ * All state is updated lock-free. A parameter seen while the doorkeeper is being cleared may be
+ * forgotten, which only makes the estimate slightly conservative.
+ *
+ * @author pakoito
+ */
+final class CostAwareAdmission {
+    private static final int[] SEEDS = {
+            0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F
+    };
+
+    private static final int COUNTERS_PER_KEY = 8;
+
+    private static final int DOORKEEPER_BITS_PER_SAMPLE = 16;
+
+    private static final int DOORKEEPER_HASHES = 11;
+
+    private static final int SAMPLES_PER_KEY = 10;
+
+    private static final long MAX_COUNT = 15L;
+
+    private static final long HALVE_MASK = 0x7777777777777777L;
+
+    static final int MAX_WIDTH = 1 << 14;
+
+    private final long minSavingsNanos;
+
+    private final AtomicLongArray counters;
+
+    private final AtomicLongArray doorkeeper;
+
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private final int counterMask;
+
+    private final int doorkeeperBits;
+
+    private final int width;
+
+    private final int sampleSize;
+
+    /**
+     * @param minSavingsNanos estimated time saved, frequency times calculation time, a result
+     *            needs to be cached
+     * @param expectedKeys approximate number of distinct parameters used
+     */
+    CostAwareAdmission(long minSavingsNanos, int expectedKeys) {
+        if (minSavingsNanos < 0) {
+            throw new IllegalArgumentException("minSavings must not be negative");
+        }
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("expectedKeys must be positive");
+        }
+        this.width = nextPowerOfTwo(expectedKeys);
+        this.minSavingsNanos = minSavingsNanos;
+        this.counters = new AtomicLongArray(width * COUNTERS_PER_KEY / 16);
+        this.counterMask = width * COUNTERS_PER_KEY - 1;
+        this.sampleSize = width * SAMPLES_PER_KEY;
+        this.doorkeeper = new AtomicLongArray(sampleSize * DOORKEEPER_BITS_PER_SAMPLE / 64);
+        this.doorkeeperBits = sampleSize * DOORKEEPER_BITS_PER_SAMPLE;
+    }
+
+    /**
+     * Record an occurrence of a parameter and decide whether its result should be cached
+     *
+     * @param key parameter used
+     * @param costNanos time taken to calculate the result
+     * @return true if the result should be cached
+     */
+    boolean admit(Object key, long costNanos) {
+        final int hash = spread(key.hashCode());
+        final int frequency;
+        // Doorkeeper holds the first occurrence, the sketch every repeat
+        if (doorkeeperPut(hash)) {
+            frequency = 1 + estimate(hash);
+        } else {
+            frequency = 1 + increment(hash);
+        }
+        if (samples.incrementAndGet() == sampleSize) {
+            reset();
+        }
+        return frequency * costNanos >= minSavingsNanos;
+    }
+
+    /**
+     * @return true if the doorkeeper did not contain the hash before
+     */
+    private boolean doorkeeperPut(int hash) {
+        final int step = rehash(hash) | 1;
+        boolean added = false;
+        for (int i = 0; i < DOORKEEPER_HASHES; i++) {
+            final int bit = ((hash + i * step) & Integer.MAX_VALUE) % doorkeeperBits;
+            final int index = bit >>> 6;
+            final long mask = 1L << bit;
+            for (;;) {
+                final long current = doorkeeper.get(index);
+                if ((current & mask) != 0) {
+                    break;
+                }
+                if (doorkeeper.compareAndSet(index, current, current | mask)) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        return added;
+    }
+
+    private int estimate(int hash) {
+        long min = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int counter = indexOf(hash, i) & counterMask;
+            min = Math.min(min, (counters.get(counter >>> 4) >>> shift(counter)) & MAX_COUNT);
+        }
+        return (int)min;
+    }
+
+    private int increment(int hash) {
+        long min = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int counter = indexOf(hash, i) & counterMask;
+            final int index = counter >>> 4;
+            final int shift = shift(counter);
+            for (;;) {
+                final long current = counters.get(index);
+                final long count = (current >>> shift) & MAX_COUNT;
+                if (count == MAX_COUNT) {
+                    break;
+                }
+                if (counters.compareAndSet(index, current, current + (1L << shift))) {
+                    min = Math.min(min, count + 1);
+                    break;
+                }
+            }
+        }
+        return (int)min;
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            for (;;) {
+                final long current = counters.get(i);
+                if (counters.compareAndSet(i, current, (current >>> 1) & HALVE_MASK)) {
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < doorkeeper.length(); i++) {
+            doorkeeper.set(i, 0L);
+        }
+        samples.addAndGet(-sampleSize);
+    }
+
+    private static int shift(int counter) {
+        return (counter & 15) << 2;
+    }
+
+    private static int indexOf(int hash, int i) {
+        int h = (hash + SEEDS[i]) * SEEDS[i];
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int rehash(int hash) {
+        int h = hash * 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        if (value >= MAX_WIDTH) {
+            return MAX_WIDTH;
+        }
+        return Math.max(16, Integer.highestOneBit(value - 1) << 1);
+    }
+}
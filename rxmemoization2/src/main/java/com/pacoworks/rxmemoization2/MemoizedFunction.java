@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Memoized version of a {@link Function} that allows invalidating cached results and observing
+ * their removal.
+ * <p/>
+ * When created with adaptive admission only results whose estimated savings clear a threshold are
+ * cached, the rest are calculated on every call.
+ * <p/>
+ * Removals are delivered asynchronously, on {@link Schedulers#computation()} unless another
+ * {@link Scheduler} is provided. Every subscriber gets its own bounded buffer, and once a slow
+ * subscriber fills it the oldest pending events are dropped and passed to that subscriber's drop
+ * hook, so the thread causing the removal is never stalled. Events still buffered when the
+ * subscriber cancels are passed to the drop hook too, so every event reaches each subscriber
+ * exactly once, either delivered or dropped.
+ * <p/>
+ * Only available for functions of one parameter.
+ *
+ * @param <A> parameter type
+ * @param <R> result type
+ * @author pakoito
+ */
+public final class MemoizedFunction<A, R> implements Function<A, R> {
+    static final int REMOVALS_BUFFER_SIZE = 1024;
+
+    private static final Consumer<Object> NO_OP = new Consumer<Object>() {
+        @Override
+        public void accept(Object o) {
+        }
+    };
+
+    private final ConcurrentMap<A, R> results = new ConcurrentHashMap<A, R>();
+
+    private final FlowableProcessor<RemovalEvent<A, R>> removalProcessor = PublishProcessor
+            .<RemovalEvent<A, R>> create().toSerialized();
+
+    private final Function<A, R> func1;
+
+    private final CostAwareAdmission admission;
+
+    MemoizedFunction(Function<A, R> func1) {
+        this(func1, null);
+    }
+
+    MemoizedFunction(Function<A, R> func1, CostAwareAdmission admission) {
+        this.func1 = func1;
+        this.admission = admission;
+    }
+
+    @Override
+    public R apply(A a) throws Exception {
+        final R cached = results.get(a);
+        if (null == cached) {
+            final R result;
+            if (null == admission) {
+                result = func1.apply(a);
+            } else {
+                final long start = System.nanoTime();
+                result = func1.apply(a);
+                if (!admission.admit(a, System.nanoTime() - start)) {
+                    return result;
+                }
+            }
+            // A concurrent calculation may have been cached first, return that one instead
+            final R previous = results.putIfAbsent(a, result);
+            return null == previous ? result : previous;
+        } else {
+            return cached;
+        }
+    }
+
+    /**
+     * Remove the cached result for a parameter, if any
+     *
+     * @param a parameter to invalidate
+     */
+    public void invalidate(A a) {
+        final R removed = results.remove(a);
+        if (null != removed) {
+            notifyRemoval(a, removed);
+        }
+    }
+
+    /**
+     * Remove all cached results
+     */
+    public void invalidateAll() {
+        for (Map.Entry<A, R> entry : results.entrySet()) {
+            if (results.remove(entry.getKey(), entry.getValue())) {
+                notifyRemoval(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stream of results removed from this function after subscription, delivered on
+     * {@link Schedulers#computation()}. Events dropped because the subscriber is slow are ignored.
+     *
+     * @return removal events, delivered asynchronously
+     */
+    public Flowable<RemovalEvent<A, R>> removals() {
+        return removals(Schedulers.computation(), NO_OP);
+    }
+
+    /**
+     * Stream of results removed from this function after subscription
+     *
+     * @param scheduler scheduler removals are delivered on
+     * @param onDropped receives the events the subscriber had no room for or left pending when
+     *            cancelling. Called on the thread removing the result or on {@code scheduler}, so
+     *            it must not block
+     * @return removal events, delivered asynchronously
+     */
+    public Flowable<RemovalEvent<A, R>> removals(Scheduler scheduler,
+            Consumer<? super RemovalEvent<A, R>> onDropped) {
+        return removalProcessor.lift(new ObserveOnDropOldest<RemovalEvent<A, R>>(scheduler,
+                REMOVALS_BUFFER_SIZE, onDropped));
+    }
+
+    private void notifyRemoval(A a, R value) {
+        removalProcessor.onNext(new RemovalEvent<A, R>(a, value, RemovalCause.EXPLICIT));
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.FlowableOperator;
+import io.reactivex.Scheduler;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.Consumer;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Operator delivering values on a {@link Scheduler} through a bounded buffer per subscriber.
+ * <p/>
+ * Upstream is never backpressured. When the buffer is full the oldest pending value is removed and
+ * passed to {@code onDropped} on the emitting thread, so the hook must not block. Values still
+ * pending on cancellation are passed to {@code onDropped} as well, so each value is either
+ * delivered or dropped.
+ *
+ * @param <T> value type
+ * @author pakoito
+ */
+final class ObserveOnDropOldest<T> implements FlowableOperator<T, T> {
+    private final Scheduler scheduler;
+
+    private final int capacity;
+
+    private final Consumer<? super T> onDropped;
+
+    ObserveOnDropOldest(Scheduler scheduler, int capacity, Consumer<? super T> onDropped) {
+        this.scheduler = scheduler;
+        this.capacity = capacity;
+        this.onDropped = onDropped;
+    }
+
+    @Override
+    public Subscriber<? super T> apply(Subscriber<? super T> child) {
+        return new DropOldestSubscriber<T>(child, scheduler.createWorker(), capacity, onDropped);
+    }
+
+    private static final class DropOldestSubscriber<T> extends AtomicInteger
+            implements Subscriber<T>, Subscription, Runnable {
+        private static final long serialVersionUID = -3830371567424862313L;
+
+        private final Subscriber<? super T> child;
+
+        private final Scheduler.Worker worker;
+
+        private final int capacity;
+
+        private final Consumer<? super T> onDropped;
+
+        private final ArrayDeque<T> queue = new ArrayDeque<T>();
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private Subscription upstream;
+
+        /* Guarded by queue, set once pending values were handed to onDropped after cancellation */
+        private boolean cleared;
+
+        private Throwable error;
+
+        private volatile boolean done;
+
+        private volatile boolean cancelled;
+
+        DropOldestSubscriber(Subscriber<? super T> child, Scheduler.Worker worker, int capacity,
+                Consumer<? super T> onDropped) {
+            this.child = child;
+            this.worker = worker;
+            this.capacity = capacity;
+            this.onDropped = onDropped;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (null != upstream) {
+                s.cancel();
+                return;
+            }
+            upstream = s;
+            child.onSubscribe(this);
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (done) {
+                return;
+            }
+            final T dropped;
+            synchronized (queue) {
+                if (cleared) {
+                    dropped = t;
+                } else {
+                    dropped = queue.size() >= capacity ? queue.poll() : null;
+                    queue.offer(t);
+                }
+            }
+            if (null != dropped) {
+                drop(dropped);
+            }
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            error = t;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                RxJavaPlugins.onError(new IllegalArgumentException("n > 0 required but it was " + n));
+                return;
+            }
+            for (;;) {
+                final long current = requested.get();
+                final long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                upstream.cancel();
+                // The drain loop hands pending values to onDropped and disposes the worker
+                schedule();
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (;;) {
+                final long r = requested.get();
+                long e = 0L;
+                while (e != r) {
+                    // Checked before polling so no value is taken out of the queue and lost
+                    if (cancelled) {
+                        cancelled();
+                        return;
+                    }
+                    final boolean d = done;
+                    final T value = poll();
+                    if (d && null == value) {
+                        terminated();
+                        return;
+                    }
+                    if (null == value) {
+                        break;
+                    }
+                    child.onNext(value);
+                    e++;
+                }
+                if (e == r) {
+                    if (cancelled) {
+                        cancelled();
+                        return;
+                    }
+                    if (done && isEmpty()) {
+                        terminated();
+                        return;
+                    }
+                }
+                if (e != 0L && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void schedule() {
+            if (getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        private void cancelled() {
+            clear();
+            worker.dispose();
+        }
+
+        private void terminated() {
+            final Throwable e = error;
+            if (null != e) {
+                child.onError(e);
+            } else {
+                child.onComplete();
+            }
+            worker.dispose();
+        }
+
+        private T poll() {
+            synchronized (queue) {
+                return queue.poll();
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (queue) {
+                return queue.isEmpty();
+            }
+        }
+
+        private void clear() {
+            final List<T> pending;
+            synchronized (queue) {
+                cleared = true;
+                pending = new ArrayList<T>(queue);
+                queue.clear();
+            }
+            for (T value : pending) {
+                drop(value);
+            }
+        }
+
+        private void drop(T value) {
+            try {
+                onDropped.accept(value);
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                RxJavaPlugins.onError(e);
+            }
+        }
+    }
+}
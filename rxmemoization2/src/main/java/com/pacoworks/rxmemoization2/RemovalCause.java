@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+/**
+ * Reason why a cached result was removed from a {@link MemoizedFunction}.
+ *
+ * @author pakoito
+ */
+public enum RemovalCause {
+    /**
+     * The result was removed by calling {@link MemoizedFunction#invalidate(Object)} or
+     * {@link MemoizedFunction#invalidateAll()}.
+     */
+    EXPLICIT
+}
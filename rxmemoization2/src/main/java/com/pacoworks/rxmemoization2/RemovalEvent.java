@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+/**
+ * Notification of a cached result leaving a {@link MemoizedFunction}.
+ *
+ * @param <K> parameter type of the memoized function
+ * @param <V> result type of the memoized function
+ * @author pakoito
+ */
+public final class RemovalEvent<K, V> {
+    private final K key;
+
+    private final V value;
+
+    private final RemovalCause cause;
+
+    RemovalEvent(K key, V value, RemovalCause cause) {
+        this.key = key;
+        this.value = value;
+        this.cause = cause;
+    }
+
+    /**
+     * @return parameter the removed result was cached for
+     */
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * @return removed result
+     */
+    public V getValue() {
+        return value;
+    }
+
+    /**
+     * @return reason for the removal
+     */
+    public RemovalCause getCause() {
+        return cause;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        RemovalEvent<?, ?> that = (RemovalEvent<?, ?>)o;
+        return key.equals(that.key) && value.equals(that.value) && cause == that.cause;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = key.hashCode();
+        result = 31 * result + value.hashCode();
+        result = 31 * result + cause.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RemovalEvent{" + "key=" + key + ", value=" + value + ", cause=" + cause + '}';
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.functions.BiFunction;
 import io.reactivex.functions.Function;
@@ -40,6 +41,8 @@ import io.reactivex.functions.Function9;
  * @author pakoito
  */
 public final class RxMemoization {
+    private static final int DEFAULT_EXPECTED_KEYS = 1024;
+
     private RxMemoization() {
         // No instances
     }
@@ -91,6 +94,60 @@ public final class RxMemoization {
         };
     }
 
+    /**
+     * Return a new version of the function that caches results, can be invalidated, and notifies
+     * of removed results.
+     * <p/>
+     * Only available for functions of one parameter.
+     *
+     * @param func1 function to wrap
+     * @return function caching results
+     */
+    public static <A, R> MemoizedFunction<A, R> memoizeWithRemovals(final Function<A, R> func1) {
+        return new MemoizedFunction<A, R>(func1);
+    }
+
+    /**
+     * Return a new version of the function that only caches results worth keeping.
+     * <p/>
+     * Every cache miss measures the calculation time and estimates how often the parameter is
+     * used. The result is cached only when frequency times calculation time reaches
+     * {@code minSavings}, so cheap or one-off calls are not stored.
+     * <p/>
+     * Only available for functions of one parameter.
+     *
+     * @param func1 function to wrap
+     * @param minSavings estimated time a result must save to be cached
+     * @param unit unit of {@code minSavings}
+     * @return function caching expensive or frequent results
+     */
+    public static <A, R> MemoizedFunction<A, R> memoizeAdaptive(final Function<A, R> func1,
+            long minSavings, TimeUnit unit) {
+        return memoizeAdaptive(func1, minSavings, unit, DEFAULT_EXPECTED_KEYS);
+    }
+
+    /**
+     * Return a new version of the function that only caches results worth keeping.
+     * <p/>
+     * Every cache miss measures the calculation time and estimates how often the parameter is
+     * used. The result is cached only when frequency times calculation time reaches
+     * {@code minSavings}, so cheap or one-off calls are not stored.
+     * <p/>
+     * Only available for functions of one parameter.
+     *
+     * @param func1 function to wrap
+     * @param minSavings estimated time a result must save to be cached
+     * @param unit unit of {@code minSavings}
+     * @param expectedKeys approximate number of distinct parameters, used to size the frequency
+     *            estimation
+     * @return function caching expensive or frequent results
+     */
+    public static <A, R> MemoizedFunction<A, R> memoizeAdaptive(final Function<A, R> func1,
+            long minSavings, TimeUnit unit, int expectedKeys) {
+        return new MemoizedFunction<A, R>(func1,
+                new CostAwareAdmission(unit.toNanos(minSavings), expectedKeys));
+    }
+
     /**
      * Return a new version of the function that caches results
      *
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CostAwareAdmissionTest {
+    private static final long COST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testExpensiveAdmittedOnFirstCall() {
+        CostAwareAdmission admission = new CostAwareAdmission(COST, 16);
+        Assert.assertTrue(admission.admit(0, COST));
+    }
+
+    @Test
+    public void testCheapAdmittedOnRepeat() {
+        CostAwareAdmission admission = new CostAwareAdmission(3 * COST, 16);
+        Assert.assertFalse(admission.admit(0, COST));
+        Assert.assertFalse(admission.admit(0, COST));
+        Assert.assertTrue(admission.admit(0, COST));
+    }
+
+    @Test
+    public void testOneOffNotAdmitted() {
+        final int expectedKeys = 1024;
+        CostAwareAdmission admission = new CostAwareAdmission(2 * COST, expectedKeys);
+        // Many more distinct parameters than expected, so the doorkeeper has to be cleared
+        for (int i = 0; i < expectedKeys * 20; i++) {
+            Assert.assertFalse(admission.admit("one-off-" + i, COST));
+        }
+    }
+
+    @Test
+    public void testFrequencyDecays() {
+        final int expectedKeys = 16;
+        CostAwareAdmission admission = new CostAwareAdmission(2 * COST, expectedKeys);
+        for (int i = 0; i < 20; i++) {
+            admission.admit("hot", COST);
+        }
+        Assert.assertTrue(admission.admit("hot", COST));
+        // Several halving periods of other parameters
+        for (int i = 0; i < expectedKeys * 10 * 4; i++) {
+            admission.admit("other-" + i, COST);
+        }
+        Assert.assertFalse(admission.admit("hot", COST));
+    }
+
+    @Test
+    public void testFrequencySurvivesReset() {
+        final int expectedKeys = 16;
+        CostAwareAdmission admission = new CostAwareAdmission(2 * COST, expectedKeys);
+        for (int i = 0; i < 20; i++) {
+            admission.admit("hot", COST);
+        }
+        // One halving period, which also clears the doorkeeper
+        for (int i = 0; i < expectedKeys * 10; i++) {
+            admission.admit("other-" + i, COST);
+        }
+        Assert.assertTrue(admission.admit("hot", COST));
+    }
+
+    @Test
+    public void testRepeatsBeyondExpectedKeysAdmitted() {
+        final int expectedKeys = 1024;
+        final int cycle = expectedKeys * 4;
+        CostAwareAdmission admission = new CostAwareAdmission(2 * COST, expectedKeys);
+        for (int i = 0; i < cycle; i++) {
+            Assert.assertFalse(admission.admit("key-" + i, COST));
+        }
+        // Every parameter repeats, more distinct ones than expected
+        int admitted = 0;
+        final int repeats = cycle * 10;
+        for (int i = 0; i < repeats; i++) {
+            if (admission.admit("key-" + (i % cycle), COST)) {
+                admitted++;
+            }
+        }
+        Assert.assertTrue(admitted > repeats * 9 / 10);
+    }
+
+    @Test
+    public void testExpectedKeysNotPowerOfTwo() {
+        CostAwareAdmission admission = new CostAwareAdmission(2 * COST, 1000);
+        Assert.assertFalse(admission.admit(0, COST));
+        Assert.assertTrue(admission.admit(0, COST));
+    }
+
+    @Test
+    public void testExpectedKeysBoundaries() {
+        CostAwareAdmission smallest = new CostAwareAdmission(2 * COST, 1);
+        Assert.assertFalse(smallest.admit(0, COST));
+        Assert.assertTrue(smallest.admit(0, COST));
+        CostAwareAdmission largest = new CostAwareAdmission(2 * COST, Integer.MAX_VALUE);
+        Assert.assertFalse(largest.admit(0, COST));
+        Assert.assertTrue(largest.admit(0, COST));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMinSavings() {
+        new CostAwareAdmission(-1, 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidExpectedKeys() {
+        new CostAwareAdmission(COST, 0);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) pakoito 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pacoworks.rxmemoization2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class MemoizedFunctionTest {
+    @Test
+    public void testInvalidate() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        MemoizedFunction<Integer, String> memoized = RxMemoization
+                .memoizeWithRemovals(new Function<Integer, String>() {
+                    @Override
+                    public String apply(Integer integer) {
+                        count.incrementAndGet();
+                        return String.valueOf(integer);
+                    }
+                });
+        // +1
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        memoized.invalidate(0);
+        // +1
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        memoized.invalidateAll();
+        // +1
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals(3, count.get());
+    }
+
+    @Test
+    public void testRemovals() throws Exception {
+        MemoizedFunction<Integer, String> memoized = memoizeToString();
+        memoized.apply(0);
+        memoized.apply(1);
+        TestSubscriber<RemovalEvent<Integer, String>> subscriber = memoized.removals().take(2)
+                .test();
+        memoized.invalidate(0);
+        // Not cached, no event
+        memoized.invalidate(2);
+        memoized.invalidate(1);
+        Assert.assertTrue(subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS));
+        final List<RemovalEvent<Integer, String>> expected = new ArrayList<RemovalEvent<Integer, String>>();
+        expected.add(new RemovalEvent<Integer, String>(0, "0", RemovalCause.EXPLICIT));
+        expected.add(new RemovalEvent<Integer, String>(1, "1", RemovalCause.EXPLICIT));
+        Assert.assertEquals(expected, subscriber.values());
+    }
+
+    @Test
+    public void testRemovalsDropOldest() throws Exception {
+        MemoizedFunction<Integer, String> memoized = memoizeToString();
+        final AtomicInteger dropped = new AtomicInteger(0);
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger deliveredOnCaller = new AtomicInteger(0);
+        final int bufferSize = MemoizedFunction.REMOVALS_BUFFER_SIZE;
+        final int removalCount = bufferSize * 4;
+        // Requests nothing until every removal happened, so all but the newest are dropped
+        TestSubscriber<RemovalEvent<Integer, String>> subscriber = memoized
+                .removals(Schedulers.single(), count(dropped))
+                .doOnNext(new Consumer<RemovalEvent<Integer, String>>() {
+                    @Override
+                    public void accept(RemovalEvent<Integer, String> event) {
+                        if (Thread.currentThread() == caller) {
+                            deliveredOnCaller.incrementAndGet();
+                        }
+                    }
+                }).take(bufferSize).test(0);
+        invalidateRange(memoized, 0, removalCount);
+        Assert.assertEquals(removalCount - bufferSize, dropped.get());
+        subscriber.request(removalCount);
+        Assert.assertTrue(subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS));
+        subscriber.assertNoErrors();
+        subscriber.assertValueCount(bufferSize);
+        final List<RemovalEvent<Integer, String>> values = subscriber.values();
+        Assert.assertEquals(removalCount - bufferSize, values.get(0).getKey().intValue());
+        Assert.assertEquals(removalCount - 1, values.get(bufferSize - 1).getKey().intValue());
+        Assert.assertEquals(0, deliveredOnCaller.get());
+    }
+
+    @Test
+    public void testRemovalsDroppedPerSubscriber() throws Exception {
+        MemoizedFunction<Integer, String> memoized = memoizeToString();
+        final int bufferSize = MemoizedFunction.REMOVALS_BUFFER_SIZE;
+        final int removalCount = bufferSize * 2;
+        final AtomicInteger fastDropped = new AtomicInteger(0);
+        final CountDownLatch fastSeen = new CountDownLatch(removalCount);
+        TestSubscriber<RemovalEvent<Integer, String>> fast = memoized
+                .removals(Schedulers.single(), count(fastDropped, fastSeen))
+                .doOnNext(count(new AtomicInteger(0), fastSeen)).test();
+        final AtomicInteger slowDropped = new AtomicInteger(0);
+        final CountDownLatch slowSeen = new CountDownLatch(removalCount);
+        TestSubscriber<RemovalEvent<Integer, String>> slow = memoized
+                .removals(Schedulers.single(), count(slowDropped, slowSeen)).test(0);
+        invalidateRange(memoized, 0, removalCount);
+        // Every event reaches each subscriber exactly once, delivered or dropped
+        Assert.assertTrue(fastSeen.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(removalCount, fast.valueCount() + fastDropped.get());
+        Assert.assertEquals(removalCount - bufferSize, slowDropped.get());
+        slow.cancel();
+        Assert.assertTrue(slowSeen.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(removalCount, slowDropped.get());
+        slow.assertNoValues();
+    }
+
+    @Test
+    public void testRemovalsPendingDroppedOnTake() throws Exception {
+        MemoizedFunction<Integer, String> memoized = memoizeToString();
+        final AtomicInteger dropped = new AtomicInteger(0);
+        final CountDownLatch droppedLatch = new CountDownLatch(3);
+        TestSubscriber<RemovalEvent<Integer, String>> subscriber = memoized
+                .removals(Schedulers.single(), count(dropped, droppedLatch)).take(2).test(0);
+        invalidateRange(memoized, 0, 5);
+        subscriber.request(2);
+        Assert.assertTrue(subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS));
+        subscriber.assertValueCount(2);
+        Assert.assertTrue(droppedLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, dropped.get());
+    }
+
+    @Test
+    public void testRemovalsPendingDroppedOnCancel() throws Exception {
+        MemoizedFunction<Integer, String> memoized = memoizeToString();
+        final AtomicInteger dropped = new AtomicInteger(0);
+        final CountDownLatch droppedLatch = new CountDownLatch(5);
+        TestSubscriber<RemovalEvent<Integer, String>> subscriber = memoized
+                .removals(Schedulers.single(), count(dropped, droppedLatch)).test(0);
+        invalidateRange(memoized, 0, 5);
+        subscriber.cancel();
+        Assert.assertTrue(droppedLatch.await(5, TimeUnit.SECONDS));
+        // Removals after cancelling are not seen at all
+        invalidateRange(memoized, 5, 10);
+        Assert.assertEquals(5, dropped.get());
+        subscriber.assertNoValues();
+    }
+
+    @Test
+    public void testAdaptiveSkipsCheap() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        MemoizedFunction<Integer, String> memoized = RxMemoization
+                .memoizeAdaptive(new Function<Integer, String>() {
+                    @Override
+                    public String apply(Integer integer) {
+                        count.incrementAndGet();
+                        return String.valueOf(integer);
+                    }
+                }, 1, TimeUnit.DAYS);
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals(3, count.get());
+    }
+
+    @Test
+    public void testAdaptiveCachesExpensive() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        MemoizedFunction<Integer, String> memoized = RxMemoization
+                .memoizeAdaptive(new Function<Integer, String>() {
+                    @Override
+                    public String apply(Integer integer) throws Exception {
+                        count.incrementAndGet();
+                        Thread.sleep(20);
+                        return String.valueOf(integer);
+                    }
+                }, 10, TimeUnit.MILLISECONDS);
+        // +1
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals("0", memoized.apply(0));
+        Assert.assertEquals(1, count.get());
+    }
+
+    private static MemoizedFunction<Integer, String> memoizeToString() {
+        return RxMemoization.memoizeWithRemovals(new Function<Integer, String>() {
+            @Override
+            public String apply(Integer integer) {
+                return String.valueOf(integer);
+            }
+        });
+    }
+
+    private static void invalidateRange(MemoizedFunction<Integer, String> memoized, int from,
+            int to) throws Exception {
+        for (int i = from; i < to; i++) {
+            memoized.apply(i);
+            memoized.invalidate(i);
+        }
+    }
+
+    private static Consumer<RemovalEvent<Integer, String>> count(final AtomicInteger count) {
+        return count(count, new CountDownLatch(0));
+    }
+
+    private static Consumer<RemovalEvent<Integer, String>> count(final AtomicInteger count,
+            final CountDownLatch latch) {
+        return new Consumer<RemovalEvent<Integer, String>>() {
+            @Override
+            public void accept(RemovalEvent<Integer, String> event) {
+                count.incrementAndGet();
+                latch.countDown();
+            }
+        };
+    }
+}